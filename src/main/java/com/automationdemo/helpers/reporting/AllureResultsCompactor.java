@@ -0,0 +1,291 @@
+package com.automationdemo.helpers.reporting;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Compacts a raw Allure results directory and records which tests changed since the previous run.
+ * <p>
+ * Within a run, attachments with identical content are stored once under their content hash and
+ * result files are rewritten to point at the deduplicated copies. The {@code results/} directory is
+ * rebuilt from scratch on every run; only {@code index.properties} carries over, and comparing it
+ * with the new fingerprints tells the publish step whether the report has to be regenerated at all.
+ * <p>
+ * Bundle layout:
+ * <pre>
+ * results/            Allure-compatible results of this run with deduplicated attachments
+ * index.properties    historyId -> fingerprint of all results (retries included) of the test,
+ *                     plus a "metadata" entry for containers, environment, categories and executor
+ * changes.txt         added/changed/removed historyIds compared to the previous index
+ * </pre>
+ */
+public class AllureResultsCompactor {
+    private static final String DEFAULT_RESULTS_DIR = "target/allure-results";
+    private static final String DEFAULT_BUNDLE_DIR = "target/allure-bundle";
+    private static final String RESULTS_DIR = "results";
+    private static final String INDEX_FILE = "index.properties";
+    private static final String CHANGES_FILE = "changes.txt";
+    private static final String ATTACHMENT_MARKER = "-attachment";
+    private static final String METADATA_KEY = "metadata";
+
+    private static final Pattern SOURCE_PATTERN = Pattern.compile("(\"source\"\\s*:\\s*\")([^\"]+)(\")");
+    private static final Pattern HISTORY_ID_PATTERN = Pattern.compile("\"historyId\"\\s*:\\s*\"([^\"]+)\"");
+    // Fields that differ between runs of an unchanged test and must not affect the fingerprint
+    private static final Pattern VOLATILE_FIELD_PATTERN =
+            Pattern.compile("\"(uuid|start|stop)\"\\s*:\\s*(\"[^\"]*\"|-?\\d+)\\s*,?");
+    private static final Pattern CHILDREN_PATTERN = Pattern.compile("\"children\"\\s*:\\s*\\[[^\\]]*]\\s*,?");
+    private static final Pattern VOLATILE_LABEL_PATTERN =
+            Pattern.compile("\\{\\s*\"name\"\\s*:\\s*\"(host|thread)\"\\s*,\\s*\"value\"\\s*:\\s*\"[^\"]*\"\\s*}\\s*,?");
+    // Screenshots and page sources differ on every run, so only the presence of an attachment counts
+    private static final Pattern FINGERPRINT_SOURCE_PATTERN = Pattern.compile("\"source\"\\s*:\\s*\"[^\"]*\"\\s*,?");
+    // Stack traces carry line numbers and driver internals; Selenium messages append session, capabilities
+    // and profile paths after the first line
+    private static final Pattern TRACE_PATTERN = Pattern.compile("\"trace\"\\s*:\\s*\"(?:[^\"\\\\]|\\\\.)*\"\\s*,?");
+    private static final Pattern MESSAGE_PATTERN = Pattern.compile("(\"message\"\\s*:\\s*\")((?:[^\"\\\\]|\\\\.)*)(\")");
+    private static final String ESCAPED_NEWLINE = "\\n";
+
+    private final Path resultsDir;
+    private final Path bundleDir;
+
+    public AllureResultsCompactor(Path resultsDir, Path bundleDir) {
+        this.resultsDir = resultsDir;
+        this.bundleDir = bundleDir;
+    }
+
+    public static void main(String[] args) {
+        Path resultsDir = Paths.get(args.length > 0 ? args[0] : DEFAULT_RESULTS_DIR);
+        Path bundleDir = Paths.get(args.length > 1 ? args[1] : DEFAULT_BUNDLE_DIR);
+        Changes changes = new AllureResultsCompactor(resultsDir, bundleDir).compact();
+        System.out.printf("Allure bundle written to %s: %d added, %d changed, %d removed%n",
+                bundleDir, changes.added().size(), changes.changed().size(), changes.removed().size());
+    }
+
+    public Changes compact() {
+        if (!Files.isDirectory(resultsDir)) {
+            throw new IllegalStateException("Allure results directory not found: " + resultsDir);
+        }
+        Path compactedDir = bundleDir.resolve(RESULTS_DIR);
+        try {
+            deleteRecursively(compactedDir);
+            Files.createDirectories(compactedDir);
+
+            Map<String, String> attachments = compactAttachments(compactedDir);
+            Properties index = rewriteResults(compactedDir, attachments);
+
+            Path indexFile = bundleDir.resolve(INDEX_FILE);
+            Changes changes = diff(loadIndex(indexFile), index);
+            storeIndex(indexFile, index);
+            writeChanges(bundleDir.resolve(CHANGES_FILE), changes);
+            return changes;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to compact Allure results from: " + resultsDir, e);
+        }
+    }
+
+    /**
+     * Copies every attachment into the bundle under its content hash and returns the mapping
+     * from the original file name to the deduplicated one.
+     */
+    private Map<String, String> compactAttachments(Path compactedDir) throws IOException {
+        Map<String, String> renamed = new HashMap<>();
+        Path tempFile = compactedDir.resolve(".attachment.tmp");
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(resultsDir, "*" + ATTACHMENT_MARKER + "*")) {
+            for (Path file : files) {
+                if (!Files.isRegularFile(file)) {
+                    continue;
+                }
+                String fileName = file.getFileName().toString();
+                String hash = copyAndHash(file, tempFile);
+                String target = hash + fileName.substring(fileName.indexOf(ATTACHMENT_MARKER));
+                Path targetFile = compactedDir.resolve(target);
+                if (Files.exists(targetFile)) {
+                    Files.delete(tempFile);
+                } else {
+                    Files.move(tempFile, targetFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+                renamed.put(fileName, target);
+            }
+        }
+        return renamed;
+    }
+
+    private Properties rewriteResults(Path compactedDir, Map<String, String> attachments) throws IOException {
+        Map<String, List<String>> fingerprints = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(resultsDir)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                if (!Files.isRegularFile(file) || attachments.containsKey(fileName)) {
+                    continue;
+                }
+                if (!fileName.endsWith(".json")) {
+                    // environment.properties and similar are copied as-is
+                    Files.copy(file, compactedDir.resolve(fileName), StandardCopyOption.REPLACE_EXISTING);
+                    addFingerprint(fingerprints, METADATA_KEY, fileName + ":" + hash(Files.readAllBytes(file)));
+                    continue;
+                }
+                String content = replaceSources(Files.readString(file, StandardCharsets.UTF_8), attachments);
+                Files.writeString(compactedDir.resolve(fileName), content, StandardCharsets.UTF_8);
+
+                if (fileName.endsWith("-result.json")) {
+                    Matcher historyId = HISTORY_ID_PATTERN.matcher(content);
+                    if (historyId.find()) {
+                        addFingerprint(fingerprints, historyId.group(1), fingerprint(content));
+                    }
+                } else if (fileName.endsWith("-container.json")) {
+                    addFingerprint(fingerprints, METADATA_KEY, fingerprint(content));
+                } else {
+                    // categories.json, executor.json
+                    addFingerprint(fingerprints, METADATA_KEY, fileName + ":" + fingerprint(content));
+                }
+            }
+        }
+
+        // Retries and repeated invocations share a historyId, so every attempt counts, independent of listing order
+        Properties index = new Properties();
+        fingerprints.forEach((key, values) -> {
+            values.sort(null);
+            index.setProperty(key, hash(String.join("\n", values).getBytes(StandardCharsets.UTF_8)));
+        });
+        return index;
+    }
+
+    private static void addFingerprint(Map<String, List<String>> fingerprints, String key, String fingerprint) {
+        fingerprints.computeIfAbsent(key, k -> new ArrayList<>()).add(fingerprint);
+    }
+
+    private static String replaceSources(String content, Map<String, String> attachments) {
+        Matcher matcher = SOURCE_PATTERN.matcher(content);
+        StringBuilder result = new StringBuilder(content.length());
+        while (matcher.find()) {
+            String source = attachments.getOrDefault(matcher.group(2), matcher.group(2));
+            matcher.appendReplacement(result, Matcher.quoteReplacement(matcher.group(1) + source + matcher.group(3)));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    private static String fingerprint(String content) {
+        String stable = VOLATILE_LABEL_PATTERN.matcher(content).replaceAll("");
+        stable = VOLATILE_FIELD_PATTERN.matcher(stable).replaceAll("");
+        stable = CHILDREN_PATTERN.matcher(stable).replaceAll("");
+        stable = FINGERPRINT_SOURCE_PATTERN.matcher(stable).replaceAll("");
+        stable = TRACE_PATTERN.matcher(stable).replaceAll("");
+        stable = MESSAGE_PATTERN.matcher(stable).replaceAll(message -> {
+            String text = message.group(2);
+            int newline = text.indexOf(ESCAPED_NEWLINE);
+            String firstLine = newline < 0 ? text : text.substring(0, newline);
+            return Matcher.quoteReplacement(message.group(1) + firstLine + message.group(3));
+        });
+        return hash(stable.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String hash(byte[] bytes) {
+        return HexFormat.of().formatHex(newDigest().digest(bytes));
+    }
+
+    private static String copyAndHash(Path source, Path target) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(source), digest);
+             OutputStream out = Files.newOutputStream(target)) {
+            in.transferTo(out);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static Changes diff(Properties previous, Properties current) {
+        List<String> added = new ArrayList<>();
+        List<String> changed = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (String historyId : new TreeSet<>(current.stringPropertyNames())) {
+            String before = previous.getProperty(historyId);
+            if (before == null) {
+                added.add(historyId);
+            } else if (!before.equals(current.getProperty(historyId))) {
+                changed.add(historyId);
+            }
+        }
+        for (String historyId : new TreeSet<>(previous.stringPropertyNames())) {
+            if (!current.containsKey(historyId)) {
+                removed.add(historyId);
+            }
+        }
+        return new Changes(added, changed, removed);
+    }
+
+    private static Properties loadIndex(Path indexFile) throws IOException {
+        Properties index = new Properties();
+        if (Files.exists(indexFile)) {
+            try (Reader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+                index.load(reader);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Writes sorted {@code key=value} lines without the timestamp comment of {@link Properties#store},
+     * so identical fingerprints always produce a byte-identical file.
+     */
+    private static void storeIndex(Path indexFile, Properties index) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (String key : new TreeSet<>(index.stringPropertyNames())) {
+            lines.add(key + "=" + index.getProperty(key));
+        }
+        Files.write(indexFile, lines, StandardCharsets.UTF_8);
+    }
+
+    private static void writeChanges(Path changesFile, Changes changes) throws IOException {
+        List<String> lines = new ArrayList<>();
+        changes.added().forEach(id -> lines.add("added " + id));
+        changes.changed().forEach(id -> lines.add("changed " + id));
+        changes.removed().forEach(id -> lines.add("removed " + id));
+        Files.write(changesFile, lines, StandardCharsets.UTF_8);
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    public record Changes(List<String> added, List<String> changed, List<String> removed) {
+        public boolean isEmpty() {
+            return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.automationdemo.helpers.reporting;
+
+import com.automationdemo.helpers.reporting.AllureResultsCompactor.Changes;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class AllureResultsCompactorTests {
+    private final List<Path> tempDirectories = new ArrayList<>();
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() throws IOException {
+        for (Path dir : tempDirectories) {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(path);
+                }
+            }
+        }
+        tempDirectories.clear();
+    }
+
+    @Test(description = "Rerun with only uuids, timings and host/thread labels changed is not reported as a change")
+    public void shouldKeepFingerprintsForUnchangedRerun() throws IOException {
+        Path results = tempDirectory("allure-results");
+        Path bundle = tempDirectory("allure-bundle");
+        write(results, "u1-result.json", result("u1", "h1", "passed", 1, "host-a"));
+        write(results, "c1-container.json", container("c1", "u1", 1));
+        compact(results, bundle);
+
+        clear(results);
+        write(results, "u2-result.json", result("u2", "h1", "passed", 5, "host-b"));
+        write(results, "c2-container.json", container("c2", "u2", 5));
+
+        assertTrue(compact(results, bundle).isEmpty(), "Unchanged rerun should not produce changes");
+    }
+
+    @Test(description = "Status change of a test is reported as changed")
+    public void shouldDetectStatusChange() throws IOException {
+        Path results = tempDirectory("allure-results");
+        Path bundle = tempDirectory("allure-bundle");
+        write(results, "u1-result.json", result("u1", "h1", "failed", 1, "host"));
+        write(results, "u2-result.json", result("u2", "h2", "passed", 1, "host"));
+        assertEquals(compact(results, bundle).added(), List.of("h1", "h2"));
+
+        write(results, "u1-result.json", result("u1", "h1", "passed", 1, "host"));
+
+        Changes changes = compact(results, bundle);
+        assertEquals(changes.changed(), List.of("h1"));
+        assertTrue(changes.added().isEmpty() && changes.removed().isEmpty(), "Only h1 should be reported");
+        assertTrue(Files.readString(bundle.resolve("changes.txt")).contains("changed h1"));
+    }
+
+    @Test(description = "Retry flipping status under the same historyId is reported as changed")
+    public void shouldDetectRetryStatusChange() throws IOException {
+        Path results = tempDirectory("allure-results");
+        Path bundle = tempDirectory("allure-bundle");
+        write(results, "a-result.json", result("a", "h1", "failed", 1, "host"));
+        write(results, "b-result.json", result("b", "h1", "failed", 2, "host"));
+        compact(results, bundle);
+
+        write(results, "b-result.json", result("b", "h1", "passed", 2, "host"));
+
+        assertEquals(compact(results, bundle).changed(), List.of("h1"));
+    }
+
+    @Test(description = "Failing rerun with new session details, trace and screenshot is not reported as a change")
+    public void shouldIgnoreVolatileFailureDetails() throws IOException {
+        Path results = tempDirectory("allure-results");
+        Path bundle = tempDirectory("allure-bundle");
+        write(results, "a1-attachment.png", "screenshot-1");
+        write(results, "u1-result.json", brokenResult("u1", "#login", "111", "a1-attachment.png"));
+        compact(results, bundle);
+
+        clear(results);
+        write(results, "a2-attachment.png", "screenshot-2");
+        write(results, "u2-result.json", brokenResult("u2", "#login", "222", "a2-attachment.png"));
+        assertTrue(compact(results, bundle).isEmpty(), "Only volatile failure details differ");
+
+        write(results, "u2-result.json", brokenResult("u2", "#logout", "222", "a2-attachment.png"));
+        assertEquals(compact(results, bundle).changed(), List.of("h1"));
+    }
+
+    @Test(description = "Environment change is reported through the metadata entry")
+    public void shouldDetectEnvironmentChange() throws IOException {
+        Path results = tempDirectory("allure-results");
+        Path bundle = tempDirectory("allure-bundle");
+        write(results, "u1-result.json", result("u1", "h1", "passed", 1, "host"));
+        write(results, "environment.properties", "env=testing");
+        compact(results, bundle);
+
+        write(results, "environment.properties", "env=staging");
+
+        assertEquals(compact(results, bundle).changed(), List.of("metadata"));
+    }
+
+    @Test(description = "Identical attachments are stored once and result sources point at the stored copy")
+    public void shouldDeduplicateAttachments() throws IOException {
+        Path results = tempDirectory("allure-results");
+        Path bundle = tempDirectory("allure-bundle");
+        write(results, "a1-attachment.png", "screenshot");
+        write(results, "a2-attachment.png", "screenshot");
+        write(results, "u1-result.json", resultWithAttachment("u1", "h1", "a1-attachment.png"));
+        write(results, "u2-result.json", resultWithAttachment("u2", "h2", "a2-attachment.png"));
+
+        compact(results, bundle);
+
+        Path compacted = bundle.resolve("results");
+        List<String> attachments;
+        try (Stream<Path> files = Files.list(compacted)) {
+            attachments = files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith("-attachment.png"))
+                    .toList();
+        }
+        assertEquals(attachments.size(), 1, "Identical attachments should collapse to one file");
+        String stored = attachments.get(0);
+        assertEquals(Files.readString(compacted.resolve(stored)), "screenshot");
+        assertTrue(Files.readString(compacted.resolve("u1-result.json")).contains("\"source\":\"" + stored + "\""));
+        assertTrue(Files.readString(compacted.resolve("u2-result.json")).contains("\"source\":\"" + stored + "\""));
+    }
+
+    private Path tempDirectory(String prefix) throws IOException {
+        Path dir = Files.createTempDirectory(prefix);
+        tempDirectories.add(dir);
+        return dir;
+    }
+
+    private static Changes compact(Path results, Path bundle) {
+        return new AllureResultsCompactor(results, bundle).compact();
+    }
+
+    private static String result(String uuid, String historyId, String status, long start, String host) {
+        return "{\"uuid\":\"" + uuid + "\",\"historyId\":\"" + historyId + "\",\"name\":\"test\""
+                + ",\"status\":\"" + status + "\""
+                + ",\"labels\":[{\"name\":\"host\",\"value\":\"" + host + "\"},{\"name\":\"story\",\"value\":\"Admin Login\"}]"
+                + ",\"start\":" + start + ",\"stop\":" + (start + 1) + "}";
+    }
+
+    private static String resultWithAttachment(String uuid, String historyId, String source) {
+        return "{\"uuid\":\"" + uuid + "\",\"historyId\":\"" + historyId + "\",\"status\":\"passed\""
+                + ",\"attachments\":[{\"name\":\"screenshot\",\"source\":\"" + source + "\",\"type\":\"image/png\"}]}";
+    }
+
+    private static String brokenResult(String uuid, String selector, String sessionId, String source) {
+        return "{\"uuid\":\"" + uuid + "\",\"historyId\":\"h1\",\"status\":\"broken\""
+                + ",\"statusDetails\":{\"known\":false"
+                + ",\"message\":\"no such element: \\\"" + selector + "\\\"\\nSession ID: " + sessionId + "\""
+                + ",\"trace\":\"org.openqa.selenium.NoSuchElementException\\n\\tat session " + sessionId + "\"}"
+                + ",\"attachments\":[{\"name\":\"screenshot\",\"source\":\"" + source + "\",\"type\":\"image/png\"}]}";
+    }
+
+    private static String container(String uuid, String child, long start) {
+        return "{\"uuid\":\"" + uuid + "\",\"children\":[\"" + child + "\"]"
+                + ",\"befores\":[{\"name\":\"setUp\",\"status\":\"passed\",\"start\":" + start + ",\"stop\":" + (start + 1) + "}]}";
+    }
+
+    private static void write(Path dir, String fileName, String content) throws IOException {
+        Files.writeString(dir.resolve(fileName), content, StandardCharsets.UTF_8);
+    }
+
+    private static void clear(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}